@@ -0,0 +1,35 @@
+package com.example.demo.docxtopdf;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预览图片访问配置
+ * 图片按源文件hash分目录存放，内容不会变化，允许浏览器长期缓存
+ */
+@Configuration
+public class HtmlPreviewConfig implements WebMvcConfigurer {
+
+    private final HtmlPreviewService htmlPreviewService;
+
+    public HtmlPreviewConfig(HtmlPreviewService htmlPreviewService) {
+        this.htmlPreviewService = htmlPreviewService;
+    }
+
+    @Override
+    public void addResourceHandlers(ResourceHandlerRegistry registry) {
+        // 目录不存在时File.toURI()不带结尾的/，资源会被解析到上一级目录
+        String location = new File(htmlPreviewService.getImageDir()).toURI().toString();
+        if (!location.endsWith("/")) {
+            location += "/";
+        }
+        registry.addResourceHandler(HtmlPreviewService.IMAGE_URI_PREFIX + "**")
+                .addResourceLocations(location)
+                .setCacheControl(CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic());
+    }
+}
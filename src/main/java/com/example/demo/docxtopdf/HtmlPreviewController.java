@@ -0,0 +1,151 @@
+package com.example.demo.docxtopdf;
+
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * word在线预览（签章前）
+ * 使用源文件hash作为强etag，重复访问直接返回304，不再进行转换
+ * gzip与未压缩内容属于不同表示，gzip的etag追加-gzip后缀，两种etag都视为未修改
+ * 图片目录随缓存淘汰删除后不再返回304，重新转换以恢复图片
+ */
+@RestController
+public class HtmlPreviewController {
+
+    private static final String GZIP_SUFFIX = "-gzip";
+
+    private final HtmlPreviewService htmlPreviewService;
+
+    public HtmlPreviewController(HtmlPreviewService htmlPreviewService) {
+        this.htmlPreviewService = htmlPreviewService;
+    }
+
+    /**
+     * 预览word
+     *
+     * @param url 文件网络路径，只允许http/https
+     * @param type 文件类型：doc、docx，为空时根据url路径后缀判断
+     * @param acceptEncoding 客户端支持的压缩方式
+     * @param ifNoneMatch 客户端缓存的etag
+     * @return html
+     */
+    @GetMapping("/preview")
+    public ResponseEntity<byte[]> preview(@RequestParam("url") String url,
+                                          @RequestParam(value = "type", required = false) String type,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                          @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        String fileType = fileType(url, type);
+        if (fileType == null || !htmlPreviewService.isAllowed(url)) {
+            return ResponseEntity.badRequest().build();
+        }
+        byte[] bytes = htmlPreviewService.fetch(url);
+        String hash = htmlPreviewService.hash(bytes);
+        boolean gzip = acceptsGzip(acceptEncoding);
+        String etag = "\"" + hash + (gzip ? GZIP_SUFFIX : "") + "\"";
+        if (notModified(ifNoneMatch, hash) && htmlPreviewService.isPublished(hash)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(CacheControl.noCache())
+                    .varyBy(HttpHeaders.ACCEPT_ENCODING)
+                    .build();
+        }
+        byte[] gzipped = htmlPreviewService.gzipHtml(fileType, bytes, hash);
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(new MediaType(MediaType.TEXT_HTML, StandardCharsets.UTF_8))
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache())
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(gzipped);
+        }
+        return builder.body(HtmlPreviewService.gunzip(gzipped));
+    }
+
+    /**
+     * 确定文件类型，type为空时取url路径（不含查询参数）的后缀
+     *
+     * @return doc、docx，不支持的类型返回null
+     */
+    private static String fileType(String url, String type) {
+        String fileType;
+        if (StringUtils.hasText(type)) {
+            fileType = type.trim().toLowerCase();
+        } else {
+            try {
+                fileType = StringUtils.getFilenameExtension(new URL(url).getPath().toLowerCase());
+            } catch (MalformedURLException e) {
+                return null;
+            }
+        }
+        return "doc".equals(fileType) || "docx".equals(fileType) ? fileType : null;
+    }
+
+    /**
+     * 解析Accept-Encoding，gzip的q值大于0时使用gzip；未列出gzip时按*处理
+     */
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (!StringUtils.hasText(acceptEncoding)) {
+            return false;
+        }
+        Double gzipQ = null;
+        Double anyQ = null;
+        for (String token : StringUtils.commaDelimitedListToStringArray(acceptEncoding)) {
+            String[] parts = token.split(";");
+            String coding = parts[0].trim().toLowerCase();
+            double q = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String param = parts[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if ("gzip".equals(coding) || "x-gzip".equals(coding)) {
+                gzipQ = q;
+            } else if ("*".equals(coding)) {
+                anyQ = q;
+            }
+        }
+        if (gzipQ != null) {
+            return gzipQ > 0;
+        }
+        return anyQ != null && anyQ > 0;
+    }
+
+    /**
+     * If-None-Match中包含源文件hash对应的任一etag（含弱校验形式）即视为未修改
+     */
+    private static boolean notModified(String ifNoneMatch, String hash) {
+        if (!StringUtils.hasText(ifNoneMatch)) {
+            return false;
+        }
+        for (String tag : StringUtils.commaDelimitedListToStringArray(ifNoneMatch)) {
+            tag = tag.trim();
+            if ("*".equals(tag)) {
+                return true;
+            }
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("\"" + hash + "\"") || tag.equals("\"" + hash + GZIP_SUFFIX + "\"")) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
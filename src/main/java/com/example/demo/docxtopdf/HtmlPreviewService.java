@@ -0,0 +1,370 @@
+package com.example.demo.docxtopdf;
+
+import com.example.demo.UncheckBizException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.StringUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * word预览服务
+ * 以源文件内容的sha-256作为缓存key和etag，同一份文件同一时刻只转换一次，
+ * 转换结果以gzip压缩后缓存，图片先写入临时目录再整体重命名为hash目录，缓存淘汰时一并删除
+ */
+@Slf4j
+@Service
+public class HtmlPreviewService {
+
+    /**
+     * 预览图片访问地址前缀
+     */
+    public static final String IMAGE_URI_PREFIX = "/preview/img/";
+
+    private static final int CONNECT_TIMEOUT = 5000;
+
+    private static final int READ_TIMEOUT = 30000;
+
+    private static final String TMP_PREFIX = ".tmp-";
+
+    private static final String TRASH_PREFIX = ".trash-";
+
+    private static final Pattern HASH_PATTERN = Pattern.compile("[0-9a-f]{64}");
+
+    private final String imageDir;
+
+    private final Set<String> allowedHosts;
+
+    private final long maxSize;
+
+    private final Map<String, byte[]> cache;
+
+    /**
+     * 正在转换的文件，同一hash的并发请求等待同一次转换
+     */
+    private final Map<String, CompletableFuture<byte[]>> converting = new ConcurrentHashMap<>();
+
+    public HtmlPreviewService(@Value("${preview.image-dir:${java.io.tmpdir}/preview}") String imageDir,
+                              @Value("${preview.cache-size:256}") int cacheSize,
+                              @Value("${preview.allowed-hosts:}") String allowedHosts,
+                              @Value("${preview.max-size:20971520}") long maxSize) {
+        File dir = new File(imageDir);
+        if (!dir.exists() && !dir.mkdirs()) {
+            throw new UncheckBizException("创建预览图片目录失败：" + imageDir);
+        }
+        this.imageDir = imageDir;
+        this.allowedHosts = StringUtils.commaDelimitedListToSet(StringUtils.trimAllWhitespace(allowedHosts).toLowerCase());
+        this.maxSize = maxSize;
+        // html缓存只在内存中，上次运行留下的图片目录已无对应缓存，启动时清理
+        cleanImageDir(dir);
+        this.cache = Collections.synchronizedMap(new LinkedHashMap<String, byte[]>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, byte[]> eldest) {
+                if (size() > cacheSize) {
+                    // 持有缓存锁时移走图片目录，避免与同一hash的重新转换交错
+                    deleteImages(eldest.getKey());
+                    return true;
+                }
+                return false;
+            }
+        });
+    }
+
+    /**
+     * @return 图片存放根目录
+     */
+    public String getImageDir() {
+        return imageDir;
+    }
+
+    /**
+     * 校验预览文件地址，只允许http/https
+     * 配置了preview.allowed-hosts时只允许其中的域名；未配置时拒绝解析到本机、链路本地、内网地址的域名
+     *
+     * @param url 文件网络路径
+     * @return 是否允许访问
+     */
+    public boolean isAllowed(String url) {
+        try {
+            URL u = new URL(url);
+            String protocol = u.getProtocol();
+            if (!"http".equals(protocol) && !"https".equals(protocol)) {
+                return false;
+            }
+            String host = u.getHost().toLowerCase();
+            if (!allowedHosts.isEmpty()) {
+                return allowedHosts.contains(host);
+            }
+            if (host.isEmpty()) {
+                return false;
+            }
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                if (isInternal(address)) {
+                    log.warn("拒绝访问内网地址：{} -> {}", host, address.getHostAddress());
+                    return false;
+                }
+            }
+            return true;
+        } catch (MalformedURLException | UnknownHostException e) {
+            return false;
+        }
+    }
+
+    private static boolean isInternal(InetAddress address) {
+        if (address.isLoopbackAddress() || address.isLinkLocalAddress() || address.isSiteLocalAddress()
+                || address.isAnyLocalAddress() || address.isMulticastAddress()) {
+            return true;
+        }
+        // ipv6唯一本地地址fc00::/7
+        return address instanceof Inet6Address && (address.getAddress()[0] & 0xfe) == 0xfc;
+    }
+
+    /**
+     * 读取预览源文件，读取失败直接抛出异常，避免对不完整的内容计算etag
+     * 不跟随重定向，防止绕过域名校验；超过preview.max-size的文件拒绝读取
+     *
+     * @param url 文件网络路径，需先经过isAllowed校验
+     * @return 源文件字节数组
+     */
+    public byte[] fetch(String url) {
+        HttpURLConnection conn = null;
+        try {
+            conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setConnectTimeout(CONNECT_TIMEOUT);
+            conn.setReadTimeout(READ_TIMEOUT);
+            conn.setInstanceFollowRedirects(false);
+            if (conn.getResponseCode() != HttpURLConnection.HTTP_OK) {
+                throw new UncheckBizException("读取预览文件失败，状态码：" + conn.getResponseCode());
+            }
+            if (conn.getContentLengthLong() > maxSize) {
+                throw new UncheckBizException("预览文件超过大小限制：" + conn.getContentLengthLong());
+            }
+            try (InputStream is = conn.getInputStream()) {
+                return readLimited(is, maxSize);
+            }
+        } catch (IOException e) {
+            throw new UncheckBizException("读取预览文件失败", e);
+        } finally {
+            if (conn != null) {
+                conn.disconnect();
+            }
+        }
+    }
+
+    /**
+     * 读取输入流，超过限制直接失败（分块传输时没有Content-Length）
+     *
+     * @param is 输入流
+     * @param limit 最大字节数
+     * @return 字节数组
+     */
+    static byte[] readLimited(InputStream is, long limit) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        long total = 0;
+        int len;
+        while ((len = is.read(buffer)) != -1) {
+            total += len;
+            if (total > limit) {
+                throw new UncheckBizException("预览文件超过大小限制：" + limit);
+            }
+            baos.write(buffer, 0, len);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * 计算源文件hash
+     *
+     * @param bytes 源文件字节数组
+     * @return 十六进制sha-256
+     */
+    public String hash(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new UncheckBizException("计算文件hash失败", e);
+        }
+    }
+
+    /**
+     * 预览结果是否仍然可用（图片目录存在），客户端缓存的html引用的图片可能已随缓存淘汰删除
+     *
+     * @param hash 源文件hash
+     * @return 是否可用
+     */
+    public boolean isPublished(String hash) {
+        return new File(imageDir, hash).isDirectory();
+    }
+
+    /**
+     * 获取gzip压缩后的预览html，缓存未命中时进行转换，同一hash的并发请求只转换一次
+     *
+     * @param fileType 文件类型：doc、docx
+     * @param bytes 源文件字节数组
+     * @param hash 源文件hash
+     * @return gzip压缩的html
+     */
+    public byte[] gzipHtml(String fileType, byte[] bytes, String hash) {
+        byte[] gzipped = cache.get(hash);
+        if (gzipped != null) {
+            return gzipped;
+        }
+        CompletableFuture<byte[]> future = new CompletableFuture<>();
+        CompletableFuture<byte[]> running = converting.putIfAbsent(hash, future);
+        if (running != null) {
+            try {
+                return running.join();
+            } catch (CompletionException e) {
+                throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+            }
+        }
+        try {
+            // 上一次转换可能在检查缓存之后刚刚完成
+            gzipped = cache.get(hash);
+            if (gzipped == null) {
+                gzipped = convert(fileType, bytes, hash);
+                cache.put(hash, gzipped);
+                log.info("预览html已缓存：{}，压缩后{}字节", hash, gzipped.length);
+            }
+            future.complete(gzipped);
+            return gzipped;
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            converting.remove(hash);
+        }
+    }
+
+    /**
+     * 转换word并发布图片目录
+     * 图片写入临时目录后整体重命名为hash目录，已存在的hash目录内容相同，直接丢弃临时目录
+     *
+     * @param fileType 文件类型：doc、docx
+     * @param bytes 源文件字节数组
+     * @param hash 源文件hash
+     * @return gzip压缩的html
+     */
+    byte[] convert(String fileType, byte[] bytes, String hash) {
+        File tmp = new File(imageDir, TMP_PREFIX + hash + "-" + UUID.randomUUID());
+        if (!tmp.mkdirs()) {
+            throw new UncheckBizException("创建图片目录失败");
+        }
+        try {
+            String html = OfficeUtil.wordToHtml(fileType, OfficeUtil.byteToStream(bytes), tmp.getPath(), IMAGE_URI_PREFIX + hash);
+            if (html == null) {
+                throw new UncheckBizException("word转html失败");
+            }
+            byte[] gzipped = gzip(html.getBytes(StandardCharsets.UTF_8));
+            synchronized (cache) {
+                File dir = new File(imageDir, hash);
+                if (!dir.exists()) {
+                    Files.move(tmp.toPath(), dir.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                }
+            }
+            return gzipped;
+        } catch (IOException e) {
+            throw new UncheckBizException("发布预览图片失败", e);
+        } finally {
+            if (tmp.exists()) {
+                FileSystemUtils.deleteRecursively(tmp);
+            }
+        }
+    }
+
+    /**
+     * 删除图片目录，先重命名再删除，保证访问方看到的要么是完整目录要么不存在
+     */
+    private void deleteImages(String hash) {
+        File dir = new File(imageDir, hash);
+        if (!dir.exists()) {
+            return;
+        }
+        File trash = new File(imageDir, TRASH_PREFIX + hash + "-" + UUID.randomUUID());
+        try {
+            Files.move(dir.toPath(), trash.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            FileSystemUtils.deleteRecursively(trash);
+        } catch (IOException e) {
+            log.error("删除预览图片目录失败：{}", hash, e);
+        }
+    }
+
+    /**
+     * 清理图片根目录下由本服务创建的目录
+     */
+    private static void cleanImageDir(File dir) {
+        File[] children = dir.listFiles();
+        if (children == null) {
+            return;
+        }
+        for (File child : children) {
+            String name = child.getName();
+            if (HASH_PATTERN.matcher(name).matches() || name.startsWith(TMP_PREFIX) || name.startsWith(TRASH_PREFIX)) {
+                FileSystemUtils.deleteRecursively(child);
+            }
+        }
+    }
+
+    /**
+     * gzip压缩
+     *
+     * @param bytes 原始字节数组
+     * @return 压缩后字节数组
+     */
+    public static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(bytes.length / 4 + 64);
+        try (GZIPOutputStream gos = new GZIPOutputStream(baos)) {
+            gos.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckBizException("gzip压缩失败", e);
+        }
+        return baos.toByteArray();
+    }
+
+    /**
+     * gzip解压
+     *
+     * @param bytes 压缩后字节数组
+     * @return 原始字节数组
+     */
+    public static byte[] gunzip(byte[] bytes) {
+        try (GZIPInputStream gis = new GZIPInputStream(OfficeUtil.byteToStream(bytes))) {
+            return OfficeUtil.streamToByte(gis);
+        } catch (IOException e) {
+            throw new UncheckBizException("gzip解压失败", e);
+        }
+    }
+}
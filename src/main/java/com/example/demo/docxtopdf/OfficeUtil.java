@@ -80,6 +80,18 @@ public class OfficeUtil {
      * @return html字符串
      */
     public static String doc2Html(InputStream inputStream, String imageDir) {
+        return doc2Html(inputStream, imageDir, imageDir);
+    }
+
+    /**
+     * doc转html，图片写入imageDir，html中图片地址使用imageUri作为前缀
+     *
+     * @param inputStream 输入流
+     * @param imageDir 图片存放目录
+     * @param imageUri html中图片地址前缀
+     * @return html字符串
+     */
+    public static String doc2Html(InputStream inputStream, String imageDir, String imageUri) {
         String content = null;
         ByteArrayOutputStream baos = null;
         try {
@@ -103,7 +115,7 @@ public class OfficeUtil {
                             log.error("文件流关闭失败", e);
                         }
                     }
-                    return imageDir + suggestedName;
+                    return imageUri + suggestedName;
                 });
             }
             wordToHtmlConverter.processDocument(wordDocument);
@@ -143,6 +155,18 @@ public class OfficeUtil {
      * @return html字符串
      */
     public static String docx2Html(InputStream in, String imageDir) {
+        return docx2Html(in, imageDir, imageDir);
+    }
+
+    /**
+     * docx转html，图片写入imageDir，html中图片地址使用imageUri作为前缀
+     *
+     * @param in 文件输入流
+     * @param imageDir  图片所在目录，为空表示不存在
+     * @param imageUri html中图片地址前缀
+     * @return html字符串
+     */
+    public static String docx2Html(InputStream in, String imageDir, String imageUri) {
         String content = null;
         ByteArrayOutputStream baos = null;
         try {
@@ -152,7 +176,7 @@ public class OfficeUtil {
             XHTMLOptions options = XHTMLOptions.create(); // 存放word中图片的目录
             if (StringUtils.isNotEmpty(imageDir)) {
                 options.setExtractor(new FileImageExtractor(new File(imageDir)));
-                options.URIResolver(new BasicURIResolver(imageDir));
+                options.URIResolver(new BasicURIResolver(imageUri));
             }
             options.setIgnoreStylesIfUnused(false);
             options.setFragment(true);
@@ -299,6 +323,24 @@ public class OfficeUtil {
         }
     }
 
+    /**
+     * word转html，图片写入imgDir，html中图片地址使用imgUri作为前缀
+     * doc直接拼接图片文件名，这里统一补全分隔符；docx由BasicURIResolver补全
+     *
+     * @param fileType 文件类型：doc、docx
+     * @param inputStream 输入流
+     * @param imgDir 图片存放目录，不以分隔符结尾
+     * @param imgUri html中图片地址前缀，不以/结尾
+     * @return html字符串
+     */
+    public static String wordToHtml(String fileType, InputStream inputStream, String imgDir, String imgUri) {
+        if (fileType.endsWith("docx")) {
+            return docx2Html(inputStream, imgDir, imgUri);
+        } else {
+            return doc2Html(inputStream, imgDir + File.separator, imgUri + "/");
+        }
+    }
+
     /**
      * 对pdf进行签章
      *
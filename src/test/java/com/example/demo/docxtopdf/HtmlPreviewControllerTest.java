@@ -0,0 +1,215 @@
+package com.example.demo.docxtopdf;
+
+import org.apache.poi.util.Units;
+import org.apache.poi.xwpf.usermodel.Document;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.jsoup.select.Elements;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit4.SpringRunner;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(SpringRunner.class)
+@WebMvcTest(HtmlPreviewController.class)
+@Import(HtmlPreviewService.class)
+@TestPropertySource(properties = {
+        "preview.image-dir=" + HtmlPreviewControllerTest.IMAGE_DIR,
+        "preview.allowed-hosts=templates.test"
+})
+public class HtmlPreviewControllerTest {
+
+    static final String IMAGE_DIR = "target/preview-test/images";
+
+    private static final String URL = "http://templates.test/contract.docx";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @SpyBean
+    private HtmlPreviewService htmlPreviewService;
+
+    private String hash;
+
+    @BeforeClass
+    public static void cleanImageDir() {
+        // 模拟新环境，图片目录不存在
+        FileSystemUtils.deleteRecursively(new File(IMAGE_DIR));
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        byte[] docx = createDocx("预览测试");
+        hash = htmlPreviewService.hash(docx);
+        doReturn(docx).when(htmlPreviewService).fetch(URL);
+    }
+
+    @Test
+    public void firstRequestReturnsEtag() throws Exception {
+        MvcResult result = mockMvc.perform(get("/preview").param("url", URL))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + hash + "\""))
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andReturn();
+        String html = new String(result.getResponse().getContentAsByteArray(), StandardCharsets.UTF_8);
+        assertTrue(html.contains("预览测试"));
+    }
+
+    @Test
+    public void ifNoneMatchReturnsNotModifiedWithoutConversion() throws Exception {
+        mockMvc.perform(get("/preview").param("url", URL))
+                .andExpect(status().isOk());
+        clearInvocations(htmlPreviewService);
+
+        mockMvc.perform(get("/preview").param("url", URL)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + hash + "\""))
+                .andExpect(status().isNotModified());
+        mockMvc.perform(get("/preview").param("url", URL)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + hash + "-gzip\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + hash + "-gzip\""));
+        // 客户端缓存的是另一种编码的etag时同样视为未修改
+        mockMvc.perform(get("/preview").param("url", URL)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"" + hash + "-gzip\""))
+                .andExpect(status().isNotModified());
+        verify(htmlPreviewService, never()).gzipHtml(anyString(), any(byte[].class), anyString());
+    }
+
+    @Test
+    public void repeatedRequestsConvertOnce() throws Exception {
+        String url = "http://templates.test/cache.docx";
+        byte[] docx = createDocx("缓存测试");
+        String cacheHash = htmlPreviewService.hash(docx);
+        doReturn(docx).when(htmlPreviewService).fetch(url);
+
+        mockMvc.perform(get("/preview").param("url", url))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/preview").param("url", url)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                .andExpect(status().isOk());
+        verify(htmlPreviewService, times(2)).gzipHtml(anyString(), any(byte[].class), eq(cacheHash));
+        verify(htmlPreviewService, times(1)).convert(anyString(), any(byte[].class), eq(cacheHash));
+    }
+
+    @Test
+    public void gzipOnlyWhenAccepted() throws Exception {
+        MvcResult result = mockMvc.perform(get("/preview").param("url", URL)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + hash + "-gzip\""))
+                .andReturn();
+        String html = new String(HtmlPreviewService.gunzip(result.getResponse().getContentAsByteArray()), StandardCharsets.UTF_8);
+        assertTrue(html.contains("预览测试"));
+
+        mockMvc.perform(get("/preview").param("url", URL)
+                .header(HttpHeaders.ACCEPT_ENCODING, "identity"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING));
+        mockMvc.perform(get("/preview").param("url", URL)
+                .header(HttpHeaders.ACCEPT_ENCODING, "gzip;q=0, deflate"))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"" + hash + "\""));
+    }
+
+    @Test
+    public void imagesResolveThroughPreviewImg() throws Exception {
+        MvcResult result = mockMvc.perform(get("/preview").param("url", URL))
+                .andExpect(status().isOk())
+                .andReturn();
+        String html = new String(result.getResponse().getContentAsByteArray(), StandardCharsets.UTF_8);
+        Elements images = Jsoup.parse(html).select("img");
+        assertFalse(images.isEmpty());
+        for (Element image : images) {
+            String src = image.attr("src");
+            assertTrue(src, src.startsWith(HtmlPreviewService.IMAGE_URI_PREFIX + hash + "/"));
+            MvcResult imageResult = mockMvc.perform(get(src))
+                    .andExpect(status().isOk())
+                    .andReturn();
+            assertTrue(imageResult.getResponse().getContentAsByteArray().length > 0);
+        }
+    }
+
+    @Test
+    public void typeFromUrlPathIgnoresQueryAndCase() throws Exception {
+        String url = "http://templates.test/CONTRACT.DOCX?token=x";
+        doReturn(createDocx("预览测试")).when(htmlPreviewService).fetch(url);
+        mockMvc.perform(get("/preview").param("url", url))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void rejectsUnsupportedType() throws Exception {
+        mockMvc.perform(get("/preview").param("url", URL).param("type", "pdf"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/preview").param("url", "http://templates.test/contract.pdf"))
+                .andExpect(status().isBadRequest());
+        verify(htmlPreviewService, never()).fetch(anyString());
+    }
+
+    @Test
+    public void rejectsNonHttpUrl() throws Exception {
+        mockMvc.perform(get("/preview").param("url", "file:///etc/passwd").param("type", "docx"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/preview").param("url", "jar:file:/tmp/a.jar!/a.docx"))
+                .andExpect(status().isBadRequest());
+        verify(htmlPreviewService, never()).fetch(anyString());
+    }
+
+    @Test
+    public void rejectsHostOutsideAllowList() throws Exception {
+        mockMvc.perform(get("/preview").param("url", "http://127.0.0.1/a.docx"))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/preview").param("url", "http://169.254.169.254/a.docx"))
+                .andExpect(status().isBadRequest());
+        verify(htmlPreviewService, never()).fetch(anyString());
+    }
+
+    /**
+     * 生成带图片的docx
+     */
+    private static byte[] createDocx(String text) throws Exception {
+        try (XWPFDocument document = new XWPFDocument();
+             ByteArrayOutputStream baos = new ByteArrayOutputStream();
+             InputStream img = OfficeUtil.getInputStreamByRelPath("sign.png")) {
+            document.createParagraph().createRun().setText(text);
+            XWPFRun run = document.createParagraph().createRun();
+            run.addPicture(img, Document.PICTURE_TYPE_PNG, "sign.png", Units.toEMU(50), Units.toEMU(50));
+            document.write(baos);
+            return baos.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.example.demo.docxtopdf;
+
+import com.example.demo.UncheckBizException;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HtmlPreviewServiceTest {
+
+    private static final String IMAGE_DIR = "target/preview-test/service";
+
+    @Before
+    public void setUp() {
+        FileSystemUtils.deleteRecursively(new File(IMAGE_DIR));
+    }
+
+    @Test
+    public void rejectsInternalAddressesWithoutAllowList() {
+        HtmlPreviewService service = new HtmlPreviewService(IMAGE_DIR, 16, "", 1024);
+        assertFalse(service.isAllowed("http://127.0.0.1/a.docx"));
+        assertFalse(service.isAllowed("http://localhost/a.docx"));
+        assertFalse(service.isAllowed("http://0.0.0.0/a.docx"));
+        assertFalse(service.isAllowed("http://10.0.0.1/a.docx"));
+        assertFalse(service.isAllowed("http://192.168.1.1/a.docx"));
+        assertFalse(service.isAllowed("http://169.254.169.254/latest/meta-data"));
+        assertFalse(service.isAllowed("http://[::1]/a.docx"));
+        assertFalse(service.isAllowed("http://[fd00::1]/a.docx"));
+        assertTrue(service.isAllowed("https://8.8.8.8/a.docx"));
+    }
+
+    @Test
+    public void allowListOverridesAddressCheck() {
+        HtmlPreviewService service = new HtmlPreviewService(IMAGE_DIR, 16, "127.0.0.1, Templates.Test", 1024);
+        assertTrue(service.isAllowed("http://127.0.0.1:8080/a.docx"));
+        assertTrue(service.isAllowed("http://templates.test/a.docx"));
+        assertFalse(service.isAllowed("https://8.8.8.8/a.docx"));
+        assertFalse(service.isAllowed("ftp://127.0.0.1/a.docx"));
+    }
+
+    @Test
+    public void readLimitedEnforcesMaxSize() throws Exception {
+        byte[] bytes = new byte[100];
+        assertArrayEquals(bytes, HtmlPreviewService.readLimited(new ByteArrayInputStream(bytes), 100));
+        try {
+            HtmlPreviewService.readLimited(new ByteArrayInputStream(new byte[101]), 100);
+            throw new AssertionError("超过限制应失败");
+        } catch (UncheckBizException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void concurrentRequestsConvertOnce() throws Exception {
+        AtomicInteger conversions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        HtmlPreviewService service = new HtmlPreviewService(IMAGE_DIR, 16, "", 1024) {
+            @Override
+            byte[] convert(String fileType, byte[] bytes, String hash) {
+                conversions.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return new byte[]{1};
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            Callable<byte[]> task = () -> service.gzipHtml("docx", new byte[0], "same");
+            results.add(executor.submit(task));
+            started.await(5, TimeUnit.SECONDS);
+            for (int i = 0; i < 7; i++) {
+                results.add(executor.submit(task));
+            }
+            byte[] first = results.get(0).get();
+            for (Future<byte[]> result : results) {
+                assertSame(first, result.get());
+            }
+            assertEquals(1, conversions.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void evictionRemovesImageDir() throws Exception {
+        HtmlPreviewService service = new HtmlPreviewService(IMAGE_DIR, 1, "", 1024);
+        byte[] first = createDocx("first");
+        byte[] second = createDocx("second");
+        String firstHash = service.hash(first);
+        String secondHash = service.hash(second);
+
+        service.gzipHtml("docx", first, firstHash);
+        assertTrue(service.isPublished(firstHash));
+        service.gzipHtml("docx", second, secondHash);
+        assertFalse(service.isPublished(firstHash));
+        assertTrue(service.isPublished(secondHash));
+        // 临时目录不应残留
+        File[] children = new File(IMAGE_DIR).listFiles();
+        assertEquals(1, children == null ? 0 : children.length);
+    }
+
+    private static byte[] createDocx(String text) throws Exception {
+        try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            document.createParagraph().createRun().setText(text);
+            document.write(baos);
+            return baos.toByteArray();
+        }
+    }
+}
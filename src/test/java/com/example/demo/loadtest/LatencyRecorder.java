@@ -0,0 +1,72 @@
+package com.example.demo.loadtest;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 耗时记录
+ * 保存全部样本（纳秒），结束后排序求分位数
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1024];
+    private int size;
+    private long errors;
+
+    public synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+        samples[size++] = nanos;
+    }
+
+    public synchronized void error() {
+        errors++;
+    }
+
+    public synchronized void reset() {
+        size = 0;
+        errors = 0;
+    }
+
+    /**
+     * 汇总统计
+     *
+     * @param seconds 统计时长（秒）
+     * @return 次数、错误数、吞吐量及p50/p99/p999/max（毫秒）
+     */
+    public synchronized Map<String, Object> summary(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, size);
+        Arrays.sort(sorted);
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("count", size);
+        map.put("errors", errors);
+        map.put("throughput", seconds > 0 ? size / seconds : 0);
+        map.put("p50Ms", percentile(sorted, 0.5));
+        map.put("p99Ms", percentile(sorted, 0.99));
+        map.put("p999Ms", percentile(sorted, 0.999));
+        map.put("maxMs", sorted.length == 0 ? 0 : toMillis(sorted[sorted.length - 1]));
+        return map;
+    }
+
+    public synchronized long total() {
+        long total = 0;
+        for (int i = 0; i < size; i++) {
+            total += samples[i];
+        }
+        return total;
+    }
+
+    static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return toMillis(sorted[Math.max(0, Math.min(index, sorted.length - 1))]);
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
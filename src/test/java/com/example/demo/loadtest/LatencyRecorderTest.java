@@ -0,0 +1,63 @@
+package com.example.demo.loadtest;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+
+public class LatencyRecorderTest {
+
+    private static final double DELTA = 1e-9;
+
+    @Test
+    public void percentileOfEmptyIsZero() {
+        assertEquals(0, LatencyRecorder.percentile(new long[0], 0.5), DELTA);
+        assertEquals(0, LatencyRecorder.percentile(new long[0], 0.999), DELTA);
+    }
+
+    @Test
+    public void percentileOfSingleSample() {
+        long[] sorted = {millis(7)};
+        assertEquals(7, LatencyRecorder.percentile(sorted, 0.5), DELTA);
+        assertEquals(7, LatencyRecorder.percentile(sorted, 0.99), DELTA);
+        assertEquals(7, LatencyRecorder.percentile(sorted, 0.999), DELTA);
+    }
+
+    @Test
+    public void percentileOfHundredSamples() {
+        long[] sorted = new long[100];
+        for (int i = 0; i < sorted.length; i++) {
+            sorted[i] = millis(i + 1);
+        }
+        assertEquals(50, LatencyRecorder.percentile(sorted, 0.5), DELTA);
+        assertEquals(99, LatencyRecorder.percentile(sorted, 0.99), DELTA);
+        // 样本不足1000个时p999取最大值
+        assertEquals(100, LatencyRecorder.percentile(sorted, 0.999), DELTA);
+    }
+
+    @Test
+    public void summaryCountsErrorsAndResets() {
+        LatencyRecorder recorder = new LatencyRecorder();
+        for (int i = 1; i <= 4; i++) {
+            recorder.record(millis(i));
+        }
+        recorder.error();
+        Map<String, Object> summary = recorder.summary(2);
+        assertEquals(4, ((Number) summary.get("count")).intValue());
+        assertEquals(1, ((Number) summary.get("errors")).intValue());
+        assertEquals(2, ((Number) summary.get("throughput")).doubleValue(), DELTA);
+        assertEquals(4, ((Number) summary.get("maxMs")).doubleValue(), DELTA);
+        assertEquals(millis(10), recorder.total());
+
+        recorder.reset();
+        summary = recorder.summary(2);
+        assertEquals(0, ((Number) summary.get("count")).intValue());
+        assertEquals(0, ((Number) summary.get("errors")).intValue());
+    }
+
+    private static long millis(long ms) {
+        return TimeUnit.MILLISECONDS.toNanos(ms);
+    }
+}
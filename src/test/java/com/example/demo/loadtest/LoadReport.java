@@ -0,0 +1,114 @@
+package com.example.demo.loadtest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 压测报告读写及基线对比
+ */
+public class LoadReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 必须与基线一致的压测配置
+     */
+    private static final String[] CONFIG_KEYS = {"concurrency", "warmupSeconds", "durationSeconds", "mix", "previewCacheSize", "templates"};
+
+    public static void write(Map<String, Object> report, String path) throws IOException {
+        File file = new File(path);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        MAPPER.writerWithDefaultPrettyPrinter().writeValue(file, report);
+    }
+
+    /**
+     * 与基线报告文件对比
+     *
+     * @see #compare(Map, Map, double)
+     */
+    public static List<String> compare(Map<String, Object> report, String baselinePath, double tolerance) throws IOException {
+        Map<String, Object> baseline = MAPPER.readValue(new File(baselinePath), new TypeReference<Map<String, Object>>() {
+        });
+        return compare(report, baseline, tolerance);
+    }
+
+    /**
+     * 与基线对比，以下情况超过容忍比例视为退化：
+     * 各场景吞吐量下降，p99、p999、错误率上升；gc停顿总耗时、p99上升；堆内存峰值上升
+     * 基线中有而本次缺失的场景也视为退化
+     *
+     * @param report 本次报告
+     * @param baseline 基线报告
+     * @param tolerance 容忍比例，如0.1表示10%
+     * @return 退化项描述，为空表示无退化
+     * @throws IllegalArgumentException 压测配置与基线不一致，结果不可比
+     */
+    public static List<String> compare(Map<String, Object> report, Map<String, Object> baseline, double tolerance) {
+        JsonNode current = MAPPER.valueToTree(report);
+        JsonNode base = MAPPER.valueToTree(baseline);
+        for (String key : CONFIG_KEYS) {
+            if (!base.path(key).equals(current.path(key))) {
+                throw new IllegalArgumentException(String.format("压测配置与基线不一致，无法对比：%s %s -> %s",
+                        key, base.path(key), current.path(key)));
+            }
+        }
+        List<String> regressions = new ArrayList<>();
+        JsonNode baseWorkloads = base.path("workloads");
+        JsonNode curWorkloads = current.path("workloads");
+        Iterator<String> names = baseWorkloads.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            JsonNode baseNode = baseWorkloads.get(name);
+            JsonNode curNode = curWorkloads.get(name);
+            if (curNode == null) {
+                regressions.add(name + " 本次未执行");
+                continue;
+            }
+            double baseThroughput = baseNode.path("throughput").asDouble();
+            double curThroughput = curNode.path("throughput").asDouble();
+            if (curThroughput < baseThroughput * (1 - tolerance)) {
+                regressions.add(String.format("%s 吞吐量 %.2f -> %.2f ops/s", name, baseThroughput, curThroughput));
+            }
+            checkIncrease(regressions, name + " p99(ms)", baseNode.path("p99Ms"), curNode.path("p99Ms"), tolerance);
+            checkIncrease(regressions, name + " p999(ms)", baseNode.path("p999Ms"), curNode.path("p999Ms"), tolerance);
+            double baseErrorRate = errorRate(baseNode);
+            double curErrorRate = errorRate(curNode);
+            if (curErrorRate > baseErrorRate * (1 + tolerance)) {
+                regressions.add(String.format("%s 错误率 %.4f -> %.4f", name, baseErrorRate, curErrorRate));
+            }
+        }
+        JsonNode baseGc = base.path("gcPauses");
+        JsonNode curGc = current.path("gcPauses");
+        checkIncrease(regressions, "gc停顿总耗时(ms)", baseGc.path("totalMs"), curGc.path("totalMs"), tolerance);
+        checkIncrease(regressions, "gc停顿p99(ms)", baseGc.path("p99Ms"), curGc.path("p99Ms"), tolerance);
+        checkIncrease(regressions, "堆内存峰值(bytes)", base.path("heapHighWaterBytes"), current.path("heapHighWaterBytes"), tolerance);
+        return regressions;
+    }
+
+    /**
+     * 指标上升超过容忍比例记为退化，基线中没有该指标或为0时不比较
+     */
+    private static void checkIncrease(List<String> regressions, String label, JsonNode base, JsonNode current, double tolerance) {
+        double baseValue = base.asDouble();
+        double curValue = current.asDouble();
+        if (baseValue > 0 && curValue > baseValue * (1 + tolerance)) {
+            regressions.add(String.format("%s %.2f -> %.2f", label, baseValue, curValue));
+        }
+    }
+
+    private static double errorRate(JsonNode node) {
+        long count = node.path("count").asLong();
+        long errors = node.path("errors").asLong();
+        return count + errors == 0 ? 0 : (double) errors / (count + errors);
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.loadtest;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LoadReportTest {
+
+    private static final double TOLERANCE = 0.25;
+
+    @Test
+    public void withinToleranceIsNotRegression() {
+        // 各指标正好变化25%，处于边界上不算退化
+        List<String> regressions = LoadReport.compare(report(75, 250, 500, 0, 1250, 50, 1_250_000),
+                baseline(), TOLERANCE);
+        assertTrue(regressions.toString(), regressions.isEmpty());
+    }
+
+    @Test
+    public void beyondToleranceIsRegression() {
+        List<String> regressions = LoadReport.compare(report(74.9, 250.1, 500.1, 0, 1250.1, 50.1, 1_250_001),
+                baseline(), TOLERANCE);
+        // 吞吐量、p99、p999、gc停顿总耗时、gc停顿p99、堆内存峰值
+        assertEquals(regressions.toString(), 6, regressions.size());
+    }
+
+    @Test
+    public void latencyRegressionDetectedIndependently() {
+        List<String> regressions = LoadReport.compare(report(100, 200, 500.1, 0, 1000, 40, 1_000_000),
+                baseline(), TOLERANCE);
+        assertEquals(regressions.toString(), 1, regressions.size());
+        assertTrue(regressions.get(0).contains("p999"));
+    }
+
+    @Test
+    public void errorRateIncreaseIsRegression() {
+        List<String> regressions = LoadReport.compare(report(100, 200, 400, 1, 1000, 40, 1_000_000),
+                baseline(), TOLERANCE);
+        assertEquals(regressions.toString(), 1, regressions.size());
+        assertTrue(regressions.get(0).contains("错误率"));
+    }
+
+    @Test
+    public void missingWorkloadIsRegression() {
+        Map<String, Object> current = baseline();
+        current.put("workloads", new LinkedHashMap<String, Object>());
+        List<String> regressions = LoadReport.compare(current, baseline(), TOLERANCE);
+        assertEquals(regressions.toString(), 1, regressions.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrencyMismatchIsRejected() {
+        Map<String, Object> current = baseline();
+        current.put("concurrency", 16);
+        LoadReport.compare(current, baseline(), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void previewCacheSizeMismatchIsRejected() {
+        Map<String, Object> current = baseline();
+        current.put("previewCacheSize", 128);
+        LoadReport.compare(current, baseline(), TOLERANCE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void templateMismatchIsRejected() {
+        Map<String, Object> current = baseline();
+        current.put("templates", Collections.singletonMap("contract.doc", "0123"));
+        LoadReport.compare(current, baseline(), TOLERANCE);
+    }
+
+    private static Map<String, Object> baseline() {
+        return report(100, 200, 400, 0, 1000, 40, 1_000_000);
+    }
+
+    private static Map<String, Object> report(double throughput, double p99Ms, double p999Ms, long errors,
+                                              double gcTotalMs, double gcP99Ms, long heapHighWaterBytes) {
+        Map<String, Object> docx = new LinkedHashMap<>();
+        docx.put("count", 1000);
+        docx.put("errors", errors);
+        docx.put("throughput", throughput);
+        docx.put("p99Ms", p99Ms);
+        docx.put("p999Ms", p999Ms);
+        Map<String, Object> workloads = new LinkedHashMap<>();
+        workloads.put("docx", docx);
+        Map<String, Object> gc = new LinkedHashMap<>();
+        gc.put("totalMs", gcTotalMs);
+        gc.put("p99Ms", gcP99Ms);
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("concurrency", 8);
+        report.put("warmupSeconds", 10);
+        report.put("durationSeconds", 60);
+        report.put("mix", "docx=1");
+        report.put("previewCacheSize", 64);
+        report.put("templates", Collections.singletonMap("generated.docx", "generated"));
+        report.put("workloads", workloads);
+        report.put("gcPauses", gc);
+        report.put("heapHighWaterBytes", heapHighWaterBytes);
+        return report;
+    }
+}
@@ -0,0 +1,392 @@
+package com.example.demo.loadtest;
+
+import com.example.demo.DemoApplication;
+import com.example.demo.docxtopdf.OfficeUtil;
+import com.itextpdf.text.Document;
+import com.itextpdf.text.PageSize;
+import com.itextpdf.text.Paragraph;
+import com.itextpdf.text.pdf.PdfWriter;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.management.NotificationEmitter;
+import javax.management.openmbean.CompositeData;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 服务压测
+ * 进程内启动DemoApplication，模板文件由本地TemplateServer提供，按比例混合执行doc/docx转换、预览和签章，
+ * 输出耗时分位数、吞吐量、gc停顿和堆内存峰值的json报告，并可与基线报告对比
+ * 报告中记录压测配置及模板指纹，配置不同的基线不做对比
+ *
+ * 预览场景：
+ * preview_hit 固定模板，命中服务端html缓存
+ * preview_miss 轮流请求内容各不相同的变体，变体数为缓存条数的4倍，每次都会重新转换
+ * preview_304 携带If-None-Match，只下载源文件计算hash后返回304
+ *
+ * 运行：mvn -Ploadtest test-compile exec:java -Dloadtest.concurrency=16 -Dloadtest.baseline=loadtest/baseline.json
+ * 压测运行在maven进程内，堆大小及gc参数通过MAVEN_OPTS指定
+ *
+ * 参数（系统属性）：
+ * loadtest.concurrency 并发线程数，默认8
+ * loadtest.warmup 预热秒数，默认10
+ * loadtest.duration 压测秒数，默认60
+ * loadtest.mix 场景比例，默认docx=4,doc=2,preview_hit=1,preview_miss=2,preview_304=1,sign=1
+ * loadtest.previewCacheSize 服务端预览缓存条数，默认64
+ * loadtest.templates 模板目录（doc/docx），没有doc模板时跳过doc场景
+ * loadtest.report 报告输出路径，默认target/loadtest/report.json
+ * loadtest.baseline 基线报告路径，为空不对比
+ * loadtest.tolerance 退化容忍比例，默认0.1
+ */
+@Slf4j
+public class LoadTestRunner {
+
+    enum Workload {
+        DOCX, DOC, PREVIEW_HIT, PREVIEW_MISS, PREVIEW_304, SIGN
+    }
+
+    /**
+     * 手动触发的gc不计入压测结果
+     */
+    private static final String SYSTEM_GC_CAUSE = "System.gc()";
+
+    /**
+     * 并发收集周期对应的收集器，耗时包含并发阶段，不是停顿时间，不计入gc停顿
+     * CMS的停顿与并发阶段合并在同一通知中，无法拆分，一并排除
+     */
+    private static final String[] CONCURRENT_COLLECTORS = {"ConcurrentMarkSweep", "G1 Concurrent GC", "ZGC Cycles", "Shenandoah Cycles", "ZGC"};
+
+    private final Map<Workload, LatencyRecorder> recorders = new EnumMap<>(Workload.class);
+    private final LatencyRecorder gcPauses = new LatencyRecorder();
+    private final Map<String, LatencyRecorder> gcPausesByCollector = new ConcurrentHashMap<>();
+    private final List<String> concurrentCollectors = new ArrayList<>();
+    private final Set<Workload> failed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong variantSeq = new AtomicLong();
+
+    private final TemplateServer templateServer = new TemplateServer();
+    private String previewBase;
+    private String previewEtag;
+    private byte[] pdfBytes;
+    private byte[] signImage;
+
+    public static void main(String[] args) throws Exception {
+        new LoadTestRunner().run();
+    }
+
+    private void run() throws Exception {
+        int concurrency = Integer.getInteger("loadtest.concurrency", 8);
+        int warmup = Integer.getInteger("loadtest.warmup", 10);
+        int duration = Integer.getInteger("loadtest.duration", 60);
+        String mix = System.getProperty("loadtest.mix", "docx=4,doc=2,preview_hit=1,preview_miss=2,preview_304=1,sign=1");
+        int previewCacheSize = Integer.getInteger("loadtest.previewCacheSize", 64);
+        String reportPath = System.getProperty("loadtest.report", "target/loadtest/report.json");
+        String baselinePath = System.getProperty("loadtest.baseline");
+        double tolerance = Double.parseDouble(System.getProperty("loadtest.tolerance", "0.1"));
+
+        templateServer.load(System.getProperty("loadtest.templates"));
+        templateServer.loadVariants(previewCacheSize * 4);
+        templateServer.start();
+        File imageDir = Files.createTempDirectory("loadtest-preview").toFile();
+        ConfigurableApplicationContext context = SpringApplication.run(DemoApplication.class,
+                "--server.port=0", "--preview.image-dir=" + imageDir.getPath(), "--preview.cache-size=" + previewCacheSize,
+                "--preview.allowed-hosts=127.0.0.1");
+        try {
+            previewBase = "http://127.0.0.1:" + context.getEnvironment().getProperty("local.server.port") + "/preview";
+            previewEtag = preview(templateServer.urls("docx").get(0), null, 200);
+            pdfBytes = createPdf();
+            signImage = OfficeUtil.streamToByte(OfficeUtil.getInputStreamByRelPath("sign.png"));
+            Workload[] choices = parseMix(mix);
+            for (Workload workload : Workload.values()) {
+                recorders.put(workload, new LatencyRecorder());
+            }
+            listenGc();
+
+            log.info("预热{}秒，并发{}", warmup, concurrency);
+            runPhase(choices, concurrency, warmup);
+            for (LatencyRecorder recorder : recorders.values()) {
+                recorder.reset();
+            }
+            // 先gc再重置，System.gc()的通知按cause过滤，异步到达也不会计入
+            System.gc();
+            gcPauses.reset();
+            for (LatencyRecorder recorder : gcPausesByCollector.values()) {
+                recorder.reset();
+            }
+            List<MemoryPoolMXBean> heapPools = heapPools();
+            for (MemoryPoolMXBean pool : heapPools) {
+                pool.resetPeakUsage();
+            }
+
+            log.info("压测{}秒，并发{}，比例{}", duration, concurrency, mix);
+            long start = System.nanoTime();
+            runPhase(choices, concurrency, duration);
+            double seconds = (System.nanoTime() - start) / 1_000_000_000.0;
+
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put("concurrency", concurrency);
+            config.put("warmupSeconds", warmup);
+            config.put("durationSeconds", duration);
+            config.put("mix", mix);
+            config.put("previewCacheSize", previewCacheSize);
+            config.put("templates", templateServer.fingerprint());
+            Map<String, Object> report = report(config, seconds, heapPools);
+            LoadReport.write(report, reportPath);
+            log.info("压测报告：{}", new File(reportPath).getAbsolutePath());
+            if (baselinePath != null) {
+                List<String> regressions = LoadReport.compare(report, baselinePath, tolerance);
+                if (!regressions.isEmpty()) {
+                    throw new IllegalStateException("相对基线出现性能退化：" + regressions);
+                }
+                log.info("与基线对比无退化（容忍比例{}）", tolerance);
+            }
+        } finally {
+            context.close();
+            templateServer.stop();
+        }
+    }
+
+    private Workload[] parseMix(String mix) {
+        List<Workload> choices = new ArrayList<>();
+        for (String item : mix.split(",")) {
+            String[] pair = item.trim().split("=");
+            Workload workload = Workload.valueOf(pair[0].trim().toUpperCase());
+            if (workload == Workload.DOC && templateServer.urls("doc").isEmpty()) {
+                log.warn("没有doc模板，跳过doc场景");
+                continue;
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            for (int i = 0; i < weight; i++) {
+                choices.add(workload);
+            }
+        }
+        if (choices.isEmpty()) {
+            throw new IllegalArgumentException("压测场景为空：" + mix);
+        }
+        return choices.toArray(new Workload[0]);
+    }
+
+    private void runPhase(Workload[] choices, int concurrency, int seconds) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            executor.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < deadline) {
+                    Workload workload = choices[random.nextInt(choices.length)];
+                    LatencyRecorder recorder = recorders.get(workload);
+                    long begin = System.nanoTime();
+                    try {
+                        execute(workload, random);
+                        recorder.record(System.nanoTime() - begin);
+                    } catch (Exception e) {
+                        // 每个场景第一次失败输出原因，之后只计数
+                        if (failed.add(workload)) {
+                            log.warn("{}执行失败，后续失败只计数", workload, e);
+                        } else {
+                            log.debug("{}执行失败", workload, e);
+                        }
+                        recorder.error();
+                    }
+                }
+            });
+        }
+        executor.shutdown();
+        if (!executor.awaitTermination(seconds + 300L, TimeUnit.SECONDS)) {
+            executor.shutdownNow();
+            throw new IllegalStateException("压测线程超时未结束，结果不可信");
+        }
+    }
+
+    private void execute(Workload workload, ThreadLocalRandom random) throws IOException {
+        switch (workload) {
+            case DOCX:
+            case DOC:
+                String type = workload == Workload.DOCX ? "docx" : "doc";
+                String html = OfficeUtil.wordToHtml(type, OfficeUtil.getInputStreamByUrl(pick(type, random)), null);
+                if (html == null) {
+                    throw new IllegalStateException(type + "转html失败");
+                }
+                break;
+            case PREVIEW_HIT:
+                preview(pick("docx", random), null, 200);
+                break;
+            case PREVIEW_MISS:
+                preview(templateServer.variantUrl(variantSeq.getAndIncrement()), null, 200);
+                break;
+            case PREVIEW_304:
+                preview(templateServer.urls("docx").get(0), previewEtag, 304);
+                break;
+            case SIGN:
+                OfficeUtil.sign(OfficeUtil.byteToStream(pdfBytes), OfficeUtil.byteToStream(signImage), null, 150, 50, 50, 30, "loadtest", null);
+                break;
+            default:
+                throw new IllegalArgumentException(workload.name());
+        }
+    }
+
+    private String pick(String type, ThreadLocalRandom random) {
+        List<String> urls = templateServer.urls(type);
+        return urls.get(random.nextInt(urls.size()));
+    }
+
+    /**
+     * 请求预览接口
+     *
+     * @param templateUrl 模板地址
+     * @param etag If-None-Match，为空不携带
+     * @param expectedStatus 期望的状态码
+     * @return 响应的etag
+     */
+    private String preview(String templateUrl, String etag, int expectedStatus) throws IOException {
+        URL url = new URL(previewBase + "?type=docx&url=" + URLEncoder.encode(templateUrl, "UTF-8"));
+        HttpURLConnection conn = (HttpURLConnection) url.openConnection();
+        conn.setRequestProperty("Accept-Encoding", "gzip");
+        if (etag != null) {
+            conn.setRequestProperty("If-None-Match", etag);
+        }
+        try {
+            if (conn.getResponseCode() != expectedStatus) {
+                throw new IllegalStateException("预览返回" + conn.getResponseCode() + "，期望" + expectedStatus);
+            }
+            if (expectedStatus == 200) {
+                try (InputStream is = conn.getInputStream()) {
+                    OfficeUtil.streamToByte(is);
+                }
+            }
+            return conn.getHeaderField("ETag");
+        } finally {
+            conn.disconnect();
+        }
+    }
+
+    /**
+     * 生成待签章的pdf
+     */
+    private static byte[] createPdf() throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        Document document = new Document(PageSize.A4);
+        PdfWriter.getInstance(document, baos);
+        document.open();
+        for (int i = 1; i <= 100; i++) {
+            document.add(new Paragraph("Clause " + i + ": the parties agree to the terms of this contract."));
+        }
+        document.close();
+        return baos.toByteArray();
+    }
+
+    /**
+     * 监听gc通知，按收集器记录停顿耗时，忽略System.gc()触发的gc和并发收集周期
+     */
+    private void listenGc() {
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (!(gc instanceof NotificationEmitter)) {
+                continue;
+            }
+            if (isConcurrentCollector(gc.getName())) {
+                concurrentCollectors.add(gc.getName());
+                continue;
+            }
+            ((NotificationEmitter) gc).addNotificationListener((notification, handback) -> {
+                if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                    GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                    if (SYSTEM_GC_CAUSE.equals(info.getGcCause())) {
+                        return;
+                    }
+                    long nanos = TimeUnit.MILLISECONDS.toNanos(info.getGcInfo().getDuration());
+                    gcPauses.record(nanos);
+                    gcPausesByCollector.computeIfAbsent(info.getGcName(), name -> new LatencyRecorder()).record(nanos);
+                }
+            }, null, null);
+        }
+    }
+
+    private static boolean isConcurrentCollector(String name) {
+        for (String collector : CONCURRENT_COLLECTORS) {
+            if (collector.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static List<MemoryPoolMXBean> heapPools() {
+        List<MemoryPoolMXBean> pools = new ArrayList<>();
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.isValid()) {
+                pools.add(pool);
+            }
+        }
+        return pools;
+    }
+
+    /**
+     * 各堆内存池峰值之和，各池峰值不一定同时出现，为堆内存峰值的上界
+     */
+    private static long heapHighWater(List<MemoryPoolMXBean> heapPools) {
+        long total = 0;
+        for (MemoryPoolMXBean pool : heapPools) {
+            total += pool.getPeakUsage().getUsed();
+        }
+        return total;
+    }
+
+    private Map<String, Object> report(Map<String, Object> config, double seconds, List<MemoryPoolMXBean> heapPools) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("timestamp", System.currentTimeMillis());
+        report.put("javaVersion", System.getProperty("java.version"));
+        report.putAll(config);
+        report.put("elapsedSeconds", seconds);
+        Map<String, Object> workloads = new LinkedHashMap<>();
+        for (Map.Entry<Workload, LatencyRecorder> entry : recorders.entrySet()) {
+            Map<String, Object> summary = entry.getValue().summary(seconds);
+            if (((Number) summary.get("count")).longValue() > 0 || ((Number) summary.get("errors")).longValue() > 0) {
+                workloads.put(entry.getKey().name().toLowerCase(), summary);
+            }
+        }
+        report.put("workloads", workloads);
+        Map<String, Object> gc = gcSummary(gcPauses, seconds);
+        Map<String, Object> collectors = new TreeMap<>();
+        for (Map.Entry<String, LatencyRecorder> entry : gcPausesByCollector.entrySet()) {
+            collectors.put(entry.getKey(), gcSummary(entry.getValue(), seconds));
+        }
+        gc.put("collectors", collectors);
+        gc.put("excludedConcurrentCollectors", concurrentCollectors);
+        report.put("gcPauses", gc);
+        report.put("heapHighWaterBytes", heapHighWater(heapPools));
+        return report;
+    }
+
+    private static Map<String, Object> gcSummary(LatencyRecorder recorder, double seconds) {
+        Map<String, Object> summary = recorder.summary(seconds);
+        summary.remove("throughput");
+        summary.remove("errors");
+        summary.put("totalMs", recorder.total() / 1_000_000.0);
+        return summary;
+    }
+}
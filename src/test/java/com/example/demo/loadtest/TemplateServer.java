@@ -0,0 +1,193 @@
+package com.example.demo.loadtest;
+
+import com.sun.net.httpserver.HttpServer;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.poi.xwpf.usermodel.XWPFDocument;
+import org.apache.poi.xwpf.usermodel.XWPFParagraph;
+import org.apache.poi.xwpf.usermodel.XWPFRun;
+import org.apache.poi.xwpf.usermodel.XWPFTable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+
+/**
+ * 本地模板文件服务，代替线上文件存储
+ * 从模板目录加载doc/docx，目录中没有docx时生成一份合同样例
+ * 另可生成内容各不相同的docx变体，用于预览缓存未命中场景
+ */
+@Slf4j
+public class TemplateServer {
+
+    private static final String VARIANT_PREFIX = "variant-";
+
+    private static final String GENERATED = "generated.docx";
+
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private int variants;
+    private boolean generated;
+    private HttpServer server;
+
+    /**
+     * 加载模板
+     *
+     * @param templateDir 模板目录，为空表示只使用生成的docx
+     */
+    public void load(String templateDir) throws IOException {
+        if (templateDir != null) {
+            File[] list = new File(templateDir).listFiles();
+            if (list != null) {
+                for (File file : list) {
+                    String name = file.getName();
+                    if (name.endsWith(".doc") || name.endsWith(".docx")) {
+                        files.put(name, Files.readAllBytes(file.toPath()));
+                    }
+                }
+            }
+        }
+        if (names("docx").isEmpty()) {
+            files.put(GENERATED, generateDocx("generated"));
+            generated = true;
+        }
+        log.info("模板文件：{}", files.keySet());
+    }
+
+    /**
+     * 生成内容互不相同的docx变体，每个变体的hash不同
+     *
+     * @param count 变体数量
+     */
+    public void loadVariants(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            files.put(VARIANT_PREFIX + i + ".docx", generateDocx(VARIANT_PREFIX + i));
+        }
+        variants = count;
+    }
+
+    /**
+     * 模板指纹，用于判断与基线是否使用相同模板
+     * 生成的docx每次字节不同（zip时间戳），以固定值代替hash；变体数量由缓存条数决定，不计入
+     *
+     * @return 文件名 -> sha-256
+     */
+    public Map<String, String> fingerprint() {
+        Map<String, String> fingerprint = new TreeMap<>();
+        for (String name : files.keySet()) {
+            if (name.startsWith(VARIANT_PREFIX)) {
+                continue;
+            }
+            fingerprint.put(name, generated && GENERATED.equals(name) ? "generated" : sha256(files.get(name)));
+        }
+        return fingerprint;
+    }
+
+    public void start() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "template-server");
+            thread.setDaemon(true);
+            return thread;
+        }));
+        server.createContext("/templates/", exchange -> {
+            String name = exchange.getRequestURI().getPath().substring("/templates/".length());
+            byte[] bytes = files.get(name);
+            if (bytes == null) {
+                exchange.sendResponseHeaders(404, -1);
+            } else {
+                exchange.sendResponseHeaders(200, bytes.length);
+                try (OutputStream os = exchange.getResponseBody()) {
+                    os.write(bytes);
+                }
+            }
+            exchange.close();
+        });
+        server.start();
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    /**
+     * @param fileType 文件类型：doc、docx
+     * @return 该类型的模板访问地址
+     */
+    public List<String> urls(String fileType) {
+        List<String> urls = new ArrayList<>();
+        for (String name : names(fileType)) {
+            urls.add("http://127.0.0.1:" + server.getAddress().getPort() + "/templates/" + name);
+        }
+        return urls;
+    }
+
+    /**
+     * @param seq 序号，按变体数量取模
+     * @return docx变体访问地址
+     */
+    public String variantUrl(long seq) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/templates/" + VARIANT_PREFIX + (seq % variants) + ".docx";
+    }
+
+    private List<String> names(String fileType) {
+        List<String> names = new ArrayList<>();
+        for (String name : files.keySet()) {
+            if (name.endsWith("." + fileType) && !name.startsWith(VARIANT_PREFIX)) {
+                names.add(name);
+            }
+        }
+        return names;
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            StringBuilder sb = new StringBuilder();
+            for (byte b : MessageDigest.getInstance("SHA-256").digest(bytes)) {
+                sb.append(String.format("%02x", b));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 生成带占位符和表格的合同样例
+     *
+     * @param marker 写入文档的标记，区分不同变体
+     */
+    private static byte[] generateDocx(String marker) throws IOException {
+        try (XWPFDocument document = new XWPFDocument(); ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+            XWPFRun title = document.createParagraph().createRun();
+            title.setBold(true);
+            title.setFontSize(18);
+            title.setText("返利合同 " + marker);
+            for (int i = 1; i <= 200; i++) {
+                XWPFParagraph paragraph = document.createParagraph();
+                XWPFRun run = paragraph.createRun();
+                run.setText("第" + i + "条 甲方${1}与乙方${2}约定，本条款内容为${3}，双方签字后生效。");
+            }
+            XWPFTable table = document.createTable(20, 5);
+            for (int row = 0; row < 20; row++) {
+                for (int col = 0; col < 5; col++) {
+                    table.getRow(row).getCell(col).setText("r" + row + "c" + col);
+                }
+            }
+            document.createParagraph().createRun().setText("${sign}");
+            document.write(baos);
+            return baos.toByteArray();
+        }
+    }
+}